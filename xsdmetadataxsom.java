@@ -1,15 +1,23 @@
+package com.example.ollamacmp.xsd;
+
 import com.sun.xml.xsom.*;
 import com.sun.xml.xsom.parser.XSOMParser;
 import com.sun.xml.xsom.util.DomAnnotationParserFactory;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.SAXParserFactory;
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 
 // XsdMetadata class to hold parsed XSD information
-class XsdMetadata {
+public class XsdMetadata {
     private String elementType;
     private String name;
     private String baseType; // Will contain XSD base types like xs:string, xs:decimal, etc.
@@ -75,21 +83,41 @@ class XsdMetadata {
 }
 
 // Main XSD Parser class using XSOM
+// Not thread-safe: keeps per-parse state, so use one instance per parse
 public class XsdParser {
     private static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
     private XSSchemaSet schemaSet;
     private Set<XSType> processedTypes;
+    private Path allowedRoot; // If set, includes/imports must stay inside this directory
+    private final Set<Path> includedSchemas = new LinkedHashSet<>(); // Every include/import location we let through
     
     public XsdParser() {
         this.processedTypes = new HashSet<>();
     }
     
+    // Parser that only follows xs:include / xs:import locations inside allowedRoot
+    public XsdParser(Path allowedRoot) {
+        this();
+        this.allowedRoot = allowedRoot.toAbsolutePath().normalize();
+    }
+    
     public XsdMetadata parseXsd(String xsdFilePath) throws Exception {
         File xsdFile = new File(xsdFilePath);
         
+        // No DOCTYPEs and no external entities - schemas only need plain XML
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        
         // Create XSOM parser
-        XSOMParser parser = new XSOMParser(SAXParserFactory.newInstance());
+        XSOMParser parser = new XSOMParser(factory);
         parser.setAnnotationParser(new DomAnnotationParserFactory());
+        if (allowedRoot != null) {
+            parser.setEntityResolver(this::resolveSchemaLocation);
+        }
         
         // Parse the XSD file - this will automatically handle includes and imports
         parser.parse(xsdFile);
@@ -123,6 +151,50 @@ public class XsdParser {
         return rootMetadata;
     }
     
+    // The files pulled in by xs:include / xs:import during the last parse (needs the allowedRoot constructor)
+    public Set<Path> getIncludedSchemas() {
+        return Collections.unmodifiableSet(includedSchemas);
+    }
+    
+    // Only allow includes/imports of local files inside allowedRoot (no ../ escapes, no symlinks out, no http)
+    private InputSource resolveSchemaLocation(String publicId, String systemId) throws SAXException {
+        if (systemId == null) {
+            return null; // <xs:import namespace="..."/> without a schemaLocation - XSOM skips it
+        }
+        
+        Path location;
+        try {
+            URI uri = URI.create(systemId);
+            if (!"file".equalsIgnoreCase(uri.getScheme())) {
+                throw new SAXException("Only local schema files may be included: " + systemId);
+            }
+            location = Paths.get(uri).toAbsolutePath().normalize();
+        } catch (IllegalArgumentException e) {
+            throw new SAXException("Invalid schema location: " + systemId);
+        }
+        
+        if (!location.startsWith(allowedRoot) || !isRealPathInsideRoot(location)) {
+            throw new SAXException("Schema location is outside the data directory: " + systemId);
+        }
+        includedSchemas.add(location);
+        
+        InputSource source = new InputSource(location.toUri().toString());
+        source.setPublicId(publicId);
+        return source;
+    }
+    
+    // Same check after following symbolic links (a missing file just fails to parse later)
+    private boolean isRealPathInsideRoot(Path location) {
+        if (!Files.exists(location)) {
+            return true;
+        }
+        try {
+            return location.toRealPath().startsWith(allowedRoot.toRealPath());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
     private XsdMetadata processElement(XSElementDecl element, XSParticle particle) {
         XsdMetadata metadata = new XsdMetadata();
         metadata.setElementType("element");